@@ -0,0 +1,180 @@
+package info.tvir.imageutils;
+
+import static info.tvir.imageutils.LinearLightScaler.ALPHA_TO_LINEAR;
+import static info.tvir.imageutils.LinearLightScaler.LINEAR_MAX;
+import static info.tvir.imageutils.LinearLightScaler.LINEAR_TO_SRGB;
+import static info.tvir.imageutils.LinearLightScaler.SRGB_TO_LINEAR;
+import static info.tvir.imageutils.LinearLightScaler.WEIGHT_BITS;
+import static info.tvir.imageutils.LinearLightScaler.WEIGHT_ROUND;
+import static info.tvir.imageutils.LinearLightScaler.clamp;
+import static info.tvir.imageutils.LinearLightScaler.premultiply;
+import static info.tvir.imageutils.LinearLightScaler.unpremultiply;
+import info.tvir.imageutils.LinearLightScaler.Contributions;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pixel kernels on Vector API. Built separately from src-vector (see build.xml),
+ *  needs JDK 16+ started with --add-modules jdk.incubator.vector.
+ * LinearLightScaler loads this class by name
+ *  and uses ScalarPixelKernels when it can't be loaded.
+ * Integer math is the same as in ScalarPixelKernels, so results are equal bit for bit.
+ */
+class VectorPixelKernels implements PixelKernels {
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+
+	/** LINEAR_TO_SRGB widened to int, so it can be gathered by IntVector */
+	private static final int[] LINEAR_TO_SRGB_INT = new int[LINEAR_MAX + 1];
+
+	static {
+		for (int i = 0; i <= LINEAR_MAX; i++){
+			LINEAR_TO_SRGB_INT[i] = LINEAR_TO_SRGB[i] & 0xFF;
+		}
+	}
+
+	@Override
+	public void unpack(int[] argb, int offset, int length, int[][] planes){
+		int[] a = planes[0];
+		int[] r = planes[1];
+		int[] g = planes[2];
+		int[] b = planes[3];
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += LANES){
+			IntVector pixel = IntVector.fromArray(SPECIES, argb, offset + i);
+			IntVector alpha = pixel.lanewise(VectorOperators.LSHR, 24);
+			// same as ALPHA_TO_LINEAR: alpha * 257
+			alpha = alpha.lanewise(VectorOperators.LSHL, 8).or(alpha);
+			alpha.intoArray(a, i);
+			pixel.lanewise(VectorOperators.LSHR, 16).and(0xFF).intoArray(r, i);
+			pixel.lanewise(VectorOperators.LSHR, 8).and(0xFF).intoArray(g, i);
+			pixel.and(0xFF).intoArray(b, i);
+			// 8 bit values are used as index map of lookup table
+			premultiplyVector(IntVector.fromArray(SPECIES, SRGB_TO_LINEAR, 0, r, i), alpha).intoArray(r, i);
+			premultiplyVector(IntVector.fromArray(SPECIES, SRGB_TO_LINEAR, 0, g, i), alpha).intoArray(g, i);
+			premultiplyVector(IntVector.fromArray(SPECIES, SRGB_TO_LINEAR, 0, b, i), alpha).intoArray(b, i);
+		}
+		for (; i < length; i++){
+			int pixel = argb[offset + i];
+			int alpha = ALPHA_TO_LINEAR[pixel >>> 24];
+			a[i] = alpha;
+			r[i] = premultiply(SRGB_TO_LINEAR[(pixel >> 16) & 0xFF], alpha);
+			g[i] = premultiply(SRGB_TO_LINEAR[(pixel >> 8) & 0xFF], alpha);
+			b[i] = premultiply(SRGB_TO_LINEAR[pixel & 0xFF], alpha);
+		}
+	}
+
+	@Override
+	public int[] pack(int[][] planes, int length){
+		int[] a = planes[0];
+		int[] r = planes[1];
+		int[] g = planes[2];
+		int[] b = planes[3];
+		unpremultiply(planes, length);
+		int[] argb = new int[length];
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += LANES){
+			IntVector alpha = IntVector.fromArray(SPECIES, a, i)
+					.lanewise(VectorOperators.ASHR, 8)
+					.lanewise(VectorOperators.LSHL, 24);
+			IntVector red = IntVector.fromArray(SPECIES, LINEAR_TO_SRGB_INT, 0, r, i);
+			IntVector green = IntVector.fromArray(SPECIES, LINEAR_TO_SRGB_INT, 0, g, i);
+			IntVector blue = IntVector.fromArray(SPECIES, LINEAR_TO_SRGB_INT, 0, b, i);
+			alpha.or(red.lanewise(VectorOperators.LSHL, 16))
+					.or(green.lanewise(VectorOperators.LSHL, 8))
+					.or(blue)
+					.intoArray(argb, i);
+		}
+		for (; i < length; i++){
+			argb[i] = ((a[i] >> 8) << 24)
+					| (LINEAR_TO_SRGB_INT[r[i]] << 16)
+					| (LINEAR_TO_SRGB_INT[g[i]] << 8)
+					| LINEAR_TO_SRGB_INT[b[i]];
+		}
+		return argb;
+	}
+
+	@Override
+	public void accumulateRow(int[] source, int[] target, int targetOffset,
+			int length, int weight){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += LANES){
+			IntVector.fromArray(SPECIES, source, i)
+					.mul(weight)
+					.add(IntVector.fromArray(SPECIES, target, targetOffset + i))
+					.intoArray(target, targetOffset + i);
+		}
+		for (; i < length; i++){
+			target[targetOffset + i] += source[i] * weight;
+		}
+	}
+
+	@Override
+	public void normalize(int[] plane){
+		int bound = SPECIES.loopBound(plane.length);
+		int i = 0;
+		for (; i < bound; i += LANES){
+			clampVector(IntVector.fromArray(SPECIES, plane, i)).intoArray(plane, i);
+		}
+		for (; i < plane.length; i++){
+			plane[i] = clamp(plane[i] >> WEIGHT_BITS);
+		}
+	}
+
+	@Override
+	public void resampleRow(int[] source, int sourceOffset, 
+			int[] target, int targetOffset,
+			Contributions contributions){
+
+		int[] start = contributions.start;
+		int[] count = contributions.count;
+		int[] tapIndex = contributions.tapIndex;
+		int[] tapWeights = contributions.tapWeights;
+		int targetWidth = start.length;
+		int bound = SPECIES.loopBound(targetWidth);
+		int x = 0;
+		// one vector is one tap of LANES target pixels, 
+		//  taps after count of a pixel have zero weight
+		for (; x < bound; x += LANES){
+			int taps = 0;
+			for (int i = x; i < x + LANES; i++){
+				taps = Math.max(taps, count[i]);
+			}
+			IntVector sum = IntVector.broadcast(SPECIES, WEIGHT_ROUND);
+			for (int k = 0; k < taps; k++){
+				int tap = k * targetWidth + x;
+				IntVector pixels = IntVector.fromArray(SPECIES, source, sourceOffset, tapIndex, tap);
+				IntVector weights = IntVector.fromArray(SPECIES, tapWeights, tap);
+				sum = sum.add(pixels.mul(weights));
+			}
+			clampVector(sum).intoArray(target, targetOffset + x);
+		}
+
+		int[] weights = contributions.weights;
+		int taps = contributions.taps;
+		for (; x < targetWidth; x++){
+			int first = sourceOffset + start[x];
+			int n = count[x];
+			int weightIndex = x * taps;
+			int sum = WEIGHT_ROUND;
+			for (int k = 0; k < n; k++){
+				sum += source[first + k] * weights[weightIndex + k];
+			}
+			target[targetOffset + x] = clamp(sum >> WEIGHT_BITS);
+		}
+	}
+
+	/** same as LinearLightScaler.premultiply(), lanes wrap as unsigned the same way */
+	private static IntVector premultiplyVector(IntVector value, IntVector alpha){
+		return value.mul(alpha).add(0x8000).lanewise(VectorOperators.LSHR, 16);
+	}
+
+	private static IntVector clampVector(IntVector sum){
+		return sum.lanewise(VectorOperators.ASHR, WEIGHT_BITS).max(0).min(LINEAR_MAX);
+	}
+}
@@ -0,0 +1,83 @@
+package info.tvir.imageutils;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Memory shared by concurrent image decodes.
+ * Every decode reserves memory of decoded image before decode starts
+ *  and waits while other decodes hold the budget.
+ * Decode that needs more than whole budget fails immediately.
+ */
+public class DecodeMemoryBudget {
+	private static final int KILOBYTE = 1024;
+
+	private static final DecodeMemoryBudget DEFAULT =
+		new DecodeMemoryBudget(Runtime.getRuntime().maxMemory() / 2);
+
+	private final long maxBytes;
+	private final Semaphore permits;
+
+	/**
+	 * @param maxBytes memory in bytes that all decodes may use together
+	 */
+	public DecodeMemoryBudget(long maxBytes){
+		if (maxBytes < KILOBYTE){
+			throw new IllegalArgumentException("budget is too small: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+		this.permits = new Semaphore(toPermits(maxBytes), true);
+	}
+
+	/**
+	 * budget shared by all ImageResizer instances by default,
+	 *  half of maximum JVM heap
+	 * @return default budget
+	 */
+	public static DecodeMemoryBudget getDefault(){
+		return DEFAULT;
+	}
+
+	/**
+	 * reserve memory, waits until enough memory is released by other decodes
+	 * @param bytes memory to reserve
+	 * @throws ImageTooLargeException if bytes are more than whole budget
+	 * @throws InterruptedIOException if thread is interrupted while waiting
+	 * @throws IllegalArgumentException if bytes are negative
+	 */
+	public void acquire(long bytes) throws ImageTooLargeException, InterruptedIOException{
+		if (bytes < 0){
+			throw new IllegalArgumentException("negative memory: " + bytes);
+		}
+		if (bytes > maxBytes){
+			throw new ImageTooLargeException(
+					"decode needs " + bytes + " bytes, memory budget is " + maxBytes + " bytes");
+		}
+		try {
+			permits.acquire(toPermits(bytes));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for memory budget");
+		}
+	}
+
+	/**
+	 * release memory reserved by acquire()
+	 * @param bytes memory to release, same value as was acquired
+	 */
+	public void release(long bytes){
+		permits.release(toPermits(bytes));
+	}
+
+	/**
+	 * @return memory in bytes that all decodes may use together
+	 */
+	public long getMaxBytes(){
+		return maxBytes;
+	}
+
+	private static int toPermits(long bytes){
+		long kilobytes = (bytes + KILOBYTE - 1) / KILOBYTE;
+		return (int) Math.min(Integer.MAX_VALUE, kilobytes);
+	}
+}
@@ -177,4 +177,108 @@ public interface IImageResizer {
 	 */
 	public abstract void setImageType(int imageType);	
 
+	/**
+	 * scale images in linear light instead of sRGB, so high contrast details
+	 *  are not darkened on downscale. Slower than default scaling.
+	 * default is false
+	 * @param linearScaling
+	 */
+	public abstract void setLinearScaling(boolean linearScaling);
+
+	/**
+	 * get boolean value if images are scaled in linear light
+	 * @return
+	 */
+	public abstract boolean isLinearScaling();
+
+	/**
+	 * set maximum number of pixels of image to decode, checked from image header
+	 *  before decode. Default is 0, no limit
+	 * @param maxPixels
+	 */
+	public abstract void setMaxPixels(long maxPixels);
+
+	/**
+	 * get maximum number of pixels of image to decode
+	 * @return maximum pixels, 0 if there is no limit
+	 */
+	public abstract long getMaxPixels();
+
+	/**
+	 * set maximum size in bytes of encoded image (file, stream or bytes array).
+	 *  Default is 0, no limit
+	 * @param maxBytes
+	 */
+	public abstract void setMaxBytes(long maxBytes);
+
+	/**
+	 * get maximum size in bytes of encoded image
+	 * @return maximum bytes, 0 if there is no limit
+	 */
+	public abstract long getMaxBytes();
+
+	/**
+	 * set maximum memory in bytes of decoded image, checked from image header
+	 *  before decode. Default is 0, limited only by memory budget
+	 * @param maxMemory
+	 */
+	public abstract void setMaxMemory(long maxMemory);
+
+	/**
+	 * get maximum memory in bytes of decoded image
+	 * @return maximum memory, 0 if limited only by memory budget
+	 */
+	public abstract long getMaxMemory();
+
+	/**
+	 * By default, image that exceeds decode limits fails with ImageTooLargeException.
+	 *  If you want to decode it subsampled to fit limits use setSubsampleOversized(true)
+	 * default is false
+	 * @param subsampleOversized
+	 */
+	public abstract void setSubsampleOversized(boolean subsampleOversized);
+
+	/**
+	 * get boolean value if image that exceeds decode limits will be subsampled
+	 * @return
+	 */
+	public abstract boolean isSubsampleOversized();
+
+	/**
+	 * set memory budget shared by concurrent decodes.
+	 *  getBufferedImage() reserves memory of decoded image only while it decodes.
+	 *  saveImageByMargins() from bytes, file or InputStream also reserves memory 
+	 *  of scaling and keeps it reserved until scaled image is saved.
+	 *  Default is DecodeMemoryBudget.getDefault(), shared by all resizers
+	 * @param memoryBudget
+	 */
+	public abstract void setMemoryBudget(DecodeMemoryBudget memoryBudget);
+
+	/**
+	 * get memory budget shared by concurrent decodes
+	 * @return memory budget
+	 */
+	public abstract DecodeMemoryBudget getMemoryBudget();
+
+	/**
+	 * use Vector API (jdk.incubator.vector) for linear light scaling.
+	 *  When it is not available scalar code is used, results are the same.
+	 * default is true
+	 * @param vectorizedScaling
+	 */
+	public abstract void setVectorizedScaling(boolean vectorizedScaling);
+
+	/**
+	 * get boolean value if Vector API is used for linear light scaling when available
+	 * @return
+	 */
+	public abstract boolean isVectorizedScaling();
+
+	/**
+	 * get boolean value if Vector API kernels are loaded. They need classes built
+	 *  from src-vector and JVM started with --add-modules jdk.incubator.vector
+	 * @return
+	 */
+	public abstract boolean isVectorizedScalingAvailable();
+
 }
\ No newline at end of file
@@ -8,18 +8,38 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 public class ImageResizer implements IImageResizer {
 	private boolean scaleToMax;	
 	private String imageFormat;
 	private int imageType;
+	private boolean linearScaling;
+	private boolean vectorizedScaling;
+	private LinearLightScaler linearLightScaler;
+	private long maxPixels;
+	private long maxBytes;
+	private long maxMemory;
+	private boolean subsampleOversized;
+	private DecodeMemoryBudget memoryBudget;
 		
 	public ImageResizer(){				
 		setScaleToMax(false);		
 		setImageFormat("JPG");
 		setImageType(BufferedImage.TYPE_INT_RGB);		
+		setLinearScaling(false);
+		setVectorizedScaling(true);
+		setMaxPixels(0);
+		setMaxBytes(0);
+		setMaxMemory(0);
+		setSubsampleOversized(false);
+		setMemoryBudget(DecodeMemoryBudget.getDefault());
 	}
 	
 	/* (non-Javadoc)
@@ -54,8 +74,7 @@ public class ImageResizer implements IImageResizer {
 			byte[] originalImageBytes, 
 			int marginWidth, int marginHeight, 
 			File fileToSave) throws IOException{		
-		BufferedImage originalImage = getBufferedImage(originalImageBytes);		
-		saveImageByMargins(originalImage, marginWidth, marginHeight, fileToSave);		
+		saveDecodedByMargins(openImageStream(originalImageBytes), marginWidth, marginHeight, fileToSave);		
 	}	
 	
 	/* (non-Javadoc)
@@ -66,8 +85,7 @@ public class ImageResizer implements IImageResizer {
 			File originalFile, 
 			int marginWidth, int marginHeight, 
 			File fileToSave) throws IOException{
-		BufferedImage originalImage = getBufferedImage(originalFile);		
-		saveImageByMargins(originalImage, marginWidth, marginHeight, fileToSave);
+		saveDecodedByMargins(openImageStream(originalFile), marginWidth, marginHeight, fileToSave);
 	}	
 	
 	/* (non-Javadoc)
@@ -78,8 +96,28 @@ public class ImageResizer implements IImageResizer {
 			InputStream imageInputStream, 
 			int marginWidth, int marginHeight, 
 			File fileToSave) throws IOException{
-		BufferedImage originalImage = getBufferedImage(imageInputStream);		
-		saveImageByMargins(originalImage, marginWidth, marginHeight, fileToSave);
+		saveDecodedByMargins(openImageStream(imageInputStream), marginWidth, marginHeight, fileToSave);
+	}
+	
+	/**
+	 * decodes image and saves it scaled. Memory of decoded image and of scaling
+	 *  stays reserved in memory budget until scaled image is saved.
+	 */
+	private void saveDecodedByMargins(
+			ImageInputStream input, 
+			int marginWidth, int marginHeight, 
+			File fileToSave) throws IOException{
+		Reservation reservation = new Reservation();
+		try {
+			BufferedImage originalImage = 
+				read(input, new Dimension(marginWidth, marginHeight), reservation);
+			if (originalImage == null){
+				throw new IOException("No image reader for input");
+			}
+			saveImageByMargins(originalImage, marginWidth, marginHeight, fileToSave);
+		} finally {
+			reservation.release();
+		}
 	}	
 		
 	/* (non-Javadoc)
@@ -200,6 +238,10 @@ public class ImageResizer implements IImageResizer {
 	public BufferedImage getScaledImage(
 			Image image, 
 			int targetWidth, int targetHeight){
+		
+		if (linearScaling){
+			return linearLightScaler.getScaledImage(image, targetWidth, targetHeight, imageType);
+		}
 				
 		BufferedImage result = new BufferedImage(targetWidth, targetHeight, imageType);   
 		Graphics2D g = result.createGraphics();  
@@ -214,7 +256,7 @@ public class ImageResizer implements IImageResizer {
 	 */
 	@Override
 	public BufferedImage getBufferedImage(InputStream input) throws IOException{		
-			return ImageIO.read(input);
+		return decode(openImageStream(input));
 	}
 	
 	/* (non-Javadoc)
@@ -222,7 +264,7 @@ public class ImageResizer implements IImageResizer {
 	 */
 	@Override
 	public BufferedImage getBufferedImage(File fileImage) throws IOException{
-		return ImageIO.read(fileImage);
+		return decode(openImageStream(fileImage));
 	}
 	
 	/* (non-Javadoc)
@@ -230,10 +272,225 @@ public class ImageResizer implements IImageResizer {
 	 */
 	@Override
 	public BufferedImage getBufferedImage(byte[] imageBytes) throws IOException {
-		InputStream input = new ByteArrayInputStream(imageBytes);
-		return getBufferedImage(input);
+		return decode(openImageStream(imageBytes));
 	}	
 	
+	private ImageInputStream openImageStream(InputStream input) throws IOException{
+		if (maxBytes > 0){
+			input = new LimitedInputStream(input, maxBytes);
+		}
+		return ImageIO.createImageInputStream(input);
+	}
+	
+	private ImageInputStream openImageStream(File fileImage) throws IOException{
+		if (!fileImage.canRead()){
+			throw new IOException("Can't read input file: " + fileImage);
+		}
+		if (maxBytes > 0 && fileImage.length() > maxBytes){
+			throw new ImageTooLargeException(
+					"image file is " + fileImage.length() + " bytes, limit is " + maxBytes + " bytes");
+		}
+		return ImageIO.createImageInputStream(fileImage);
+	}
+	
+	private ImageInputStream openImageStream(byte[] imageBytes) throws IOException{
+		if (maxBytes > 0 && imageBytes.length > maxBytes){
+			throw new ImageTooLargeException(
+					"image is " + imageBytes.length + " bytes, limit is " + maxBytes + " bytes");
+		}
+		return openImageStream(new ByteArrayInputStream(imageBytes));
+	}
+	
+	/**
+	 * decodes image, memory budget is reserved only while image is decoded
+	 */
+	private BufferedImage decode(ImageInputStream input) throws IOException{
+		Reservation reservation = new Reservation();
+		try {
+			return read(input, null, reservation);
+		} finally {
+			reservation.release();
+		}
+	}
+	
+	/**
+	 * reads image size from header, checks it against limits 
+	 *  and decodes image within memory budget.
+	 * @param margins margins image will be scaled to, 
+	 *  memory of scaling is reserved too. null if image is not scaled
+	 * @param reservation reservation in memory budget, caller must release it
+	 * @return decoded image or null if there is no reader for image format
+	 */
+	private BufferedImage read(ImageInputStream input, 
+			Dimension margins, Reservation reservation) throws IOException{
+		if (input == null){
+			throw new IOException("Can't create ImageInputStream");
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()){
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				return read(reader, margins, reservation);
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			// readers wrap exceptions of stream, e.g. when maxBytes is exceeded
+			throw getTooLargeCause(e);
+		} finally {
+			input.close();
+		}
+	}
+	
+	private IOException getTooLargeCause(IOException e){
+		for (Throwable cause = e; cause != null; cause = cause.getCause()){
+			if (cause instanceof ImageTooLargeException){
+				return (ImageTooLargeException) cause;
+			}
+		}
+		return e;
+	}
+	
+	private BufferedImage read(ImageReader reader, 
+			Dimension margins, Reservation reservation) throws IOException{
+		int width = reader.getWidth(0);
+		int height = reader.getHeight(0);
+		int bytesPerPixel = getBytesPerPixel(reader);
+		int subsampling = getSubsampling(width, height, bytesPerPixel, margins);
+		
+		ImageReadParam param = reader.getDefaultReadParam();
+		if (subsampling > 1){
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+		
+		reservation.acquire(getReservedMemory(width, height, subsampling, bytesPerPixel, margins));
+		return reader.read(0, param);
+	}
+	
+	/**
+	 * smallest subsampling that fits image to limits
+	 * @throws ImageTooLargeException if image does not fit and 
+	 *  subsampling is not allowed or even one pixel does not fit
+	 */
+	private int getSubsampling(int width, int height, 
+			int bytesPerPixel, Dimension margins) throws ImageTooLargeException{
+		if (fitsLimits(width, height, 1, bytesPerPixel, margins)){
+			return 1;
+		}
+		int maxSubsampling = Math.max(width, height);
+		if (!subsampleOversized 
+				|| !fitsLimits(width, height, maxSubsampling, bytesPerPixel, margins)){
+			throw new ImageTooLargeException(
+					"image " + width + "x" + height + " exceeds decode limits");
+		}
+		
+		// decoded image only gets smaller with subsampling, 
+		//  low never fits and high always fits
+		int low = 1;
+		int high = maxSubsampling;
+		while (high - low > 1){
+			int middle = low + (high - low) / 2;
+			if (fitsLimits(width, height, middle, bytesPerPixel, margins)){
+				high = middle;
+			} else {
+				low = middle;
+			}
+		}
+		return high;
+	}
+	
+	/**
+	 * checks decoded image against limits and, with memory of scaling 
+	 *  when margins are given, against memory budget
+	 */
+	private boolean fitsLimits(int width, int height, int subsampling, 
+			int bytesPerPixel, Dimension margins){
+		long pixels = getDecodedSide(width, subsampling) * getDecodedSide(height, subsampling);
+		// checked before multiplying by bytesPerPixel, so memory can't overflow
+		if (pixels > memoryBudget.getMaxBytes() / bytesPerPixel){
+			return false;
+		}
+		if (maxPixels > 0 && pixels > maxPixels){
+			return false;
+		}
+		if (maxMemory > 0 && pixels * bytesPerPixel > maxMemory){
+			return false;
+		}
+		long memory = getReservedMemory(width, height, subsampling, bytesPerPixel, margins);
+		return memory <= memoryBudget.getMaxBytes();
+	}
+	
+	/**
+	 * memory of decoded image and, when margins are given, of scaling it
+	 */
+	private long getReservedMemory(int width, int height, int subsampling, 
+			int bytesPerPixel, Dimension margins){
+		long decodedWidth = getDecodedSide(width, subsampling);
+		long decodedHeight = getDecodedSide(height, subsampling);
+		long memory = decodedWidth * decodedHeight * bytesPerPixel;
+		if (margins != null){
+			// decoded sides are never larger than original int sides
+			memory += getScalingMemory((int) decodedWidth, (int) decodedHeight, margins);
+		}
+		return memory;
+	}
+	
+	private long getDecodedSide(int side, int subsampling){
+		return ((long) side + subsampling - 1) / subsampling;
+	}
+	
+	/**
+	 * memory of scaled image and, for linear scaling, of its buffers
+	 */
+	private long getScalingMemory(int width, int height, Dimension margins){
+		Dimension target = getTargetDimensionByMargins(
+				margins.getWidth(), margins.getHeight(), width, height);
+		long memory = 4L * target.getWidth() * target.getHeight();
+		if (linearScaling){
+			memory += linearLightScaler.getScalingMemory(
+					width, height, target.getWidth(), target.getHeight());
+		}
+		return memory;
+	}
+	
+	/**
+	 * bytes per pixel of decoded image, 4 if reader can't tell it from header
+	 */
+	private int getBytesPerPixel(ImageReader reader) throws IOException{
+		ImageTypeSpecifier type = reader.getRawImageType(0);
+		if (type == null){
+			return 4;
+		}
+		int bits = type.getColorModel().getPixelSize();
+		return Math.max(1, (bits + 7) / 8);
+	}
+	
+	/**
+	 * Memory reserved in budget by one decode
+	 */
+	private class Reservation {
+		private DecodeMemoryBudget budget;
+		private long bytes;
+		
+		void acquire(long bytes) throws IOException{
+			DecodeMemoryBudget budget = memoryBudget;
+			budget.acquire(bytes);
+			this.budget = budget;
+			this.bytes = bytes;
+		}
+		
+		void release(){
+			if (budget != null){
+				budget.release(bytes);
+				budget = null;
+			}
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see info.tvir.imageutils.IImageResizer#saveImageToFile(java.awt.image.BufferedImage, java.io.File)
 	 */
@@ -291,4 +548,125 @@ public class ImageResizer implements IImageResizer {
 		this.imageType = imageType;
 	}	
 
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setLinearScaling(boolean)
+	 */
+	@Override
+	public void setLinearScaling(boolean linearScaling) {
+		this.linearScaling = linearScaling;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#isLinearScaling()
+	 */
+	@Override
+	public boolean isLinearScaling() {
+		return linearScaling;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setMaxPixels(long)
+	 */
+	@Override
+	public void setMaxPixels(long maxPixels) {
+		this.maxPixels = maxPixels;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#getMaxPixels()
+	 */
+	@Override
+	public long getMaxPixels() {
+		return maxPixels;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setMaxBytes(long)
+	 */
+	@Override
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#getMaxBytes()
+	 */
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setMaxMemory(long)
+	 */
+	@Override
+	public void setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#getMaxMemory()
+	 */
+	@Override
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setSubsampleOversized(boolean)
+	 */
+	@Override
+	public void setSubsampleOversized(boolean subsampleOversized) {
+		this.subsampleOversized = subsampleOversized;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#isSubsampleOversized()
+	 */
+	@Override
+	public boolean isSubsampleOversized() {
+		return subsampleOversized;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setMemoryBudget(info.tvir.imageutils.DecodeMemoryBudget)
+	 */
+	@Override
+	public void setMemoryBudget(DecodeMemoryBudget memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#getMemoryBudget()
+	 */
+	@Override
+	public DecodeMemoryBudget getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#setVectorizedScaling(boolean)
+	 */
+	@Override
+	public void setVectorizedScaling(boolean vectorizedScaling) {
+		this.vectorizedScaling = vectorizedScaling;
+		this.linearLightScaler = new LinearLightScaler(vectorizedScaling);
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#isVectorizedScaling()
+	 */
+	@Override
+	public boolean isVectorizedScaling() {
+		return vectorizedScaling;
+	}
+
+	/* (non-Javadoc)
+	 * @see info.tvir.imageutils.IImageResizer#isVectorizedScalingAvailable()
+	 */
+	@Override
+	public boolean isVectorizedScalingAvailable() {
+		return LinearLightScaler.isVectorAvailable();
+	}
+
 }
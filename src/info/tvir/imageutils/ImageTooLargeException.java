@@ -0,0 +1,15 @@
+package info.tvir.imageutils;
+
+import java.io.IOException;
+
+/**
+ * Thrown when image exceeds decode limits (pixels, bytes or memory)
+ *  and can not be decoded.
+ */
+public class ImageTooLargeException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public ImageTooLargeException(String message){
+		super(message);
+	}
+}
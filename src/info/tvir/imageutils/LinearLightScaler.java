@@ -0,0 +1,368 @@
+package info.tvir.imageutils;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Scales images in linear light instead of sRGB.
+ * Pixels are converted through precomputed lookup tables
+ *  (8 bit sRGB to 16 bit linear and back) and resampled with
+ *  fixed-point integer weights, so no floating point math is done per pixel.
+ * Colors are resampled premultiplied by alpha, so transparent pixels
+ *  don't bleed their hidden color into visible ones.
+ */
+class LinearLightScaler {
+	/** fixed-point precision of resample weights */
+	static final int WEIGHT_BITS = 14;
+	static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+	static final int WEIGHT_ROUND = 1 << (WEIGHT_BITS - 1);
+
+	static final int LINEAR_MAX = 0xFFFF;
+
+	/** alpha, red, green, blue */
+	static final int CHANNELS = 4;
+
+	/** 8 bit sRGB value to 16 bit linear value */
+	static final int[] SRGB_TO_LINEAR = new int[256];
+	/** 8 bit alpha value to 16 bit value, no gamma */
+	static final int[] ALPHA_TO_LINEAR = new int[256];
+	/** 16 bit linear value to 8 bit sRGB value */
+	static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_MAX + 1];
+
+	static {
+		for (int i = 0; i < 256; i++){
+			double srgb = i / 255.0;
+			double linear;
+			if (srgb <= 0.04045){
+				linear = srgb / 12.92;
+			} else {
+				linear = Math.pow((srgb + 0.055) / 1.055, 2.4);
+			}
+			SRGB_TO_LINEAR[i] = (int) Math.round(linear * LINEAR_MAX);
+			ALPHA_TO_LINEAR[i] = i * 257;
+		}
+		for (int i = 0; i <= LINEAR_MAX; i++){
+			double linear = (double) i / LINEAR_MAX;
+			double srgb;
+			if (linear <= 0.0031308){
+				srgb = linear * 12.92;
+			} else {
+				srgb = 1.055 * Math.pow(linear, 1.0 / 2.4) - 0.055;
+			}
+			LINEAR_TO_SRGB[i] = (byte) Math.round(srgb * 255);
+		}
+	}
+
+	/** vectorized kernels, null if jdk.incubator.vector is not available */
+	private static final PixelKernels VECTOR_KERNELS = loadVectorKernels();
+
+	private final PixelKernels kernels;
+	/** vectorized kernels gather taps, so they need tap-major copies of weights */
+	private final boolean tapMajor;
+
+	/**
+	 * @param vectorized use kernels of Vector API when it is available,
+	 *  scalar kernels are used otherwise
+	 */
+	LinearLightScaler(boolean vectorized){
+		if (vectorized && VECTOR_KERNELS != null){
+			kernels = VECTOR_KERNELS;
+		} else {
+			kernels = new ScalarPixelKernels();
+		}
+		tapMajor = kernels == VECTOR_KERNELS;
+	}
+
+	/**
+	 * VectorPixelKernels is built from src-vector and loaded by name, 
+	 *  so this class does not link to jdk.incubator.vector. 
+	 *  It is missing from classpath or fails to link when module is not available
+	 */
+	private static PixelKernels loadVectorKernels(){
+		if (Boolean.getBoolean("info.tvir.imageutils.noVector")){
+			return null;
+		}
+		try {
+			Class<?> kernelsClass = Class.forName("info.tvir.imageutils.VectorPixelKernels");
+			return (PixelKernels) kernelsClass.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if kernels of Vector API are loaded
+	 */
+	static boolean isVectorAvailable(){
+		return VECTOR_KERNELS != null;
+	}
+
+	/**
+	 * get image scaled in linear light
+	 * @param image image to scale
+	 * @param targetWidth target image width
+	 * @param targetHeight target image height
+	 * @param imageType type of result image
+	 * @return scaled image
+	 */
+	public BufferedImage getScaledImage(
+			Image image,
+			int targetWidth, int targetHeight,
+			int imageType){
+
+		BufferedImage source = toBufferedImage(image);
+		int sourceWidth = source.getWidth();
+		int sourceHeight = source.getHeight();
+
+		Contributions horizontal = new Contributions(sourceWidth, targetWidth, tapMajor);
+		Contributions vertical = new Contributions(sourceHeight, targetHeight, false);
+
+		// source is converted row by row and every row is added to target rows
+		//  it contributes to, so only one row of source is kept in linear light
+		int[] sourceRow = new int[sourceWidth];
+		int[][] rowPlanes = new int[CHANNELS][sourceWidth];
+		int[][] columns = new int[CHANNELS][sourceWidth * targetHeight];
+		for (int c = 0; c < CHANNELS; c++){
+			Arrays.fill(columns[c], WEIGHT_ROUND);
+		}
+		int firstTarget = 0;
+		for (int y = 0; y < sourceHeight && firstTarget < targetHeight; y++){
+			// start and end of contributions only grow with target row
+			while (firstTarget < targetHeight 
+					&& vertical.start[firstTarget] + vertical.count[firstTarget] <= y){
+				firstTarget++;
+			}
+			boolean unpacked = false;
+			for (int t = firstTarget; t < targetHeight && vertical.start[t] <= y; t++){
+				int k = y - vertical.start[t];
+				if (k >= vertical.count[t]){
+					continue;
+				}
+				int weight = vertical.weights[t * vertical.taps + k];
+				if (weight == 0){
+					continue;
+				}
+				if (!unpacked){
+					getRow(source, y, sourceRow);
+					kernels.unpack(sourceRow, 0, sourceWidth, rowPlanes);
+					unpacked = true;
+				}
+				for (int c = 0; c < CHANNELS; c++){
+					kernels.accumulateRow(rowPlanes[c], columns[c], t * sourceWidth, sourceWidth, weight);
+				}
+			}
+		}
+
+		// horizontal pass runs on target rows only
+		int[][] planes = new int[CHANNELS][];
+		for (int c = 0; c < CHANNELS; c++){
+			kernels.normalize(columns[c]);
+			planes[c] = new int[targetWidth * targetHeight];
+			for (int t = 0; t < targetHeight; t++){
+				kernels.resampleRow(columns[c], t * sourceWidth, 
+						planes[c], t * targetWidth, horizontal);
+			}
+			columns[c] = null;
+		}
+
+		int[] result = kernels.pack(planes, targetWidth * targetHeight);
+
+		BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, imageType);
+		scaled.setRGB(0, 0, targetWidth, targetHeight, result, 0, targetWidth);
+		return scaled;
+	}
+
+	/**
+	 * memory of buffers used by getScaledImage(), without source and result images
+	 */
+	long getScalingMemory(int sourceWidth, int sourceHeight,
+			int targetWidth, int targetHeight){
+		long rows = 4L * (CHANNELS + 1) * sourceWidth;
+		long vertical = 4L * CHANNELS * sourceWidth * targetHeight;
+		long horizontal = 4L * (CHANNELS + 1) * targetWidth * targetHeight;
+		long contributions = Contributions.getMemory(sourceWidth, targetWidth, tapMajor)
+				+ Contributions.getMemory(sourceHeight, targetHeight, false);
+		return rows + vertical + horizontal + contributions;
+	}
+
+	/**
+	 * get ARGB pixels of one image row. Integer images are copied from raster directly,
+	 *  other types are converted by getRGB()
+	 */
+	private void getRow(BufferedImage image, int y, int[] row){
+		int width = row.length;
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB){
+			image.getRaster().getDataElements(0, y, width, 1, row);
+		} else if (type == BufferedImage.TYPE_INT_RGB){
+			image.getRaster().getDataElements(0, y, width, 1, row);
+			for (int x = 0; x < width; x++){
+				row[x] |= 0xFF000000;
+			}
+		} else {
+			image.getRGB(0, y, width, 1, row, 0, width);
+		}
+	}
+
+	private BufferedImage toBufferedImage(Image image){
+		if (image instanceof BufferedImage){
+			return (BufferedImage) image;
+		}
+		int width = image.getWidth(null);
+		int height = image.getHeight(null);
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = result.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return result;
+	}
+
+	/**
+	 * premultiply 16 bit linear color by 16 bit alpha.
+	 * value * alpha + 0x8000 is at most 0xFFFE8001, so it fits 32 bits
+	 *  when read as unsigned, opaque colors are kept exactly
+	 */
+	static int premultiply(int value, int alpha){
+		return (value * alpha + 0x8000) >>> 16;
+	}
+
+	/**
+	 * divide premultiplied color planes by alpha, in place
+	 * @param planes planes in order alpha, red, green, blue
+	 * @param length number of pixels
+	 */
+	static void unpremultiply(int[][] planes, int length){
+		int[] a = planes[0];
+		for (int c = 1; c < CHANNELS; c++){
+			int[] plane = planes[c];
+			for (int i = 0; i < length; i++){
+				int alpha = a[i];
+				if (alpha == 0){
+					plane[i] = 0;
+				} else if (alpha != LINEAR_MAX){
+					long value = ((long) plane[i] * LINEAR_MAX + (alpha >> 1)) / alpha;
+					plane[i] = (int) Math.min(LINEAR_MAX, value);
+				}
+			}
+		}
+	}
+
+	static int clamp(int value){
+		if (value < 0){
+			return 0;
+		}
+		if (value > LINEAR_MAX){
+			return LINEAR_MAX;
+		}
+		return value;
+	}
+
+	/**
+	 * Fixed-point weights of source pixels for every target pixel of one axis.
+	 * Uses triangle filter, widened by scale factor when downscaling.
+	 * Weights are stored with fixed stride of taps, unused taps are zero.
+	 * tapIndex and tapWeights hold the same taps ordered by tap, then by target pixel,
+	 *  so vectorized kernels can gather one tap of several target pixels at once.
+	 *  They are only built when asked for, null otherwise.
+	 */
+	static class Contributions {
+		final int taps;
+		final int[] start;
+		final int[] count;
+		final int[] weights;
+		final int[] tapIndex;
+		final int[] tapWeights;
+
+		/**
+		 * @param tapMajor build tapIndex and tapWeights
+		 */
+		Contributions(int sourceLength, int targetLength, boolean tapMajor){
+			double scale = (double) targetLength / sourceLength;
+			double support = scale < 1 ? 1 / scale : 1;
+
+			taps = getTaps(sourceLength, targetLength);
+			start = new int[targetLength];
+			count = new int[targetLength];
+			weights = new int[targetLength * taps];
+
+			double[] exact = new double[taps];
+			for (int i = 0; i < targetLength; i++){
+				double center = (i + 0.5) / scale - 0.5;
+				int first = Math.max(0, (int) Math.floor(center - support) + 1);
+				int last = Math.min(sourceLength - 1, (int) Math.ceil(center + support) - 1);
+				if (last < first){
+					// target pixel between source pixels at the edge, use nearest
+					first = Math.min(sourceLength - 1, Math.max(0, (int) Math.round(center)));
+					last = first;
+				}
+				int n = Math.min(taps, last - first + 1);
+
+				double total = 0;
+				for (int k = 0; k < n; k++){
+					double distance = Math.abs(first + k - center) / support;
+					exact[k] = Math.max(0, 1 - distance);
+					total += exact[k];
+				}
+
+				start[i] = first;
+				count[i] = n;
+				int offset = i * taps;
+				if (total <= 0){
+					weights[offset] = WEIGHT_ONE;
+					continue;
+				}
+				// normalize, put rounding error to the biggest weight so sum is exactly WEIGHT_ONE
+				int sum = 0;
+				int biggest = 0;
+				for (int k = 0; k < n; k++){
+					int weight = (int) Math.round(exact[k] / total * WEIGHT_ONE);
+					weights[offset + k] = weight;
+					sum += weight;
+					if (weight > weights[offset + biggest]){
+						biggest = k;
+					}
+				}
+				weights[offset + biggest] += WEIGHT_ONE - sum;
+			}
+
+			if (!tapMajor){
+				tapIndex = null;
+				tapWeights = null;
+				return;
+			}
+			tapIndex = new int[taps * targetLength];
+			tapWeights = new int[taps * targetLength];
+			for (int k = 0; k < taps; k++){
+				for (int i = 0; i < targetLength; i++){
+					// unused taps have zero weight, index is only kept inside source
+					tapIndex[k * targetLength + i] = Math.min(sourceLength - 1, start[i] + k);
+					tapWeights[k * targetLength + i] = weights[i * taps + k];
+				}
+			}
+		}
+
+		/**
+		 * memory of contributions of one axis
+		 */
+		static long getMemory(int sourceLength, int targetLength, boolean tapMajor){
+			long weights = (long) getTaps(sourceLength, targetLength) * targetLength;
+			long memory = 4L * (2 * targetLength + weights);
+			if (tapMajor){
+				memory += 4L * 2 * weights;
+			}
+			return memory;
+		}
+
+		private static int getTaps(int sourceLength, int targetLength){
+			double scale = (double) targetLength / sourceLength;
+			double support = scale < 1 ? 1 / scale : 1;
+			return (int) Math.ceil(support) * 2 + 1;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package info.tvir.imageutils;
+
+import info.tvir.imageutils.LinearLightScaler.Contributions;
+
+/**
+ * Inner loops of LinearLightScaler: conversion between ARGB pixels and
+ *  planar 16 bit linear channels, and vertical and horizontal resample passes.
+ * All implementations must give exactly the same results.
+ */
+interface PixelKernels {
+
+	/**
+	 * split ARGB pixels to planar 16 bit linear channels,
+	 *  colors are premultiplied by alpha
+	 * @param argb ARGB pixels
+	 * @param offset index of first pixel
+	 * @param length number of pixels
+	 * @param planes planes in order alpha, red, green, blue to fill from index 0
+	 */
+	void unpack(int[] argb, int offset, int length, int[][] planes);
+
+	/**
+	 * join planar 16 bit linear channels back to ARGB pixels
+	 * @param planes planes in order alpha, red, green, blue, colors premultiplied by alpha.
+	 *  Color planes are changed in place
+	 * @param length number of pixels
+	 * @return ARGB pixels
+	 */
+	int[] pack(int[][] planes, int length);
+
+	/**
+	 * add weighted row to target, for vertical pass
+	 * @param source source row
+	 * @param target array of sums
+	 * @param targetOffset index of first sum
+	 * @param length number of pixels
+	 * @param weight fixed-point weight of source row
+	 */
+	void accumulateRow(int[] source, int[] target, int targetOffset, 
+			int length, int weight);
+
+	/**
+	 * convert fixed-point sums of vertical pass back to 16 bit values, in place
+	 * @param plane sums, already rounded
+	 */
+	void normalize(int[] plane);
+
+	/**
+	 * resample one row to target width, for horizontal pass
+	 * @param source array with source row
+	 * @param sourceOffset index of first source pixel
+	 * @param target array to write resampled row to
+	 * @param targetOffset index of first target pixel
+	 */
+	void resampleRow(int[] source, int sourceOffset, 
+			int[] target, int targetOffset,
+			Contributions contributions);
+}
@@ -0,0 +1,87 @@
+package info.tvir.imageutils;
+
+import static info.tvir.imageutils.LinearLightScaler.ALPHA_TO_LINEAR;
+import static info.tvir.imageutils.LinearLightScaler.LINEAR_TO_SRGB;
+import static info.tvir.imageutils.LinearLightScaler.SRGB_TO_LINEAR;
+import static info.tvir.imageutils.LinearLightScaler.WEIGHT_BITS;
+import static info.tvir.imageutils.LinearLightScaler.WEIGHT_ROUND;
+import static info.tvir.imageutils.LinearLightScaler.clamp;
+import static info.tvir.imageutils.LinearLightScaler.premultiply;
+import static info.tvir.imageutils.LinearLightScaler.unpremultiply;
+import info.tvir.imageutils.LinearLightScaler.Contributions;
+
+/**
+ * Plain Java pixel kernels, used when Vector API is not available.
+ */
+class ScalarPixelKernels implements PixelKernels {
+
+	@Override
+	public void unpack(int[] argb, int offset, int length, int[][] planes){
+		int[] a = planes[0];
+		int[] r = planes[1];
+		int[] g = planes[2];
+		int[] b = planes[3];
+		for (int i = 0; i < length; i++){
+			int pixel = argb[offset + i];
+			int alpha = ALPHA_TO_LINEAR[pixel >>> 24];
+			a[i] = alpha;
+			r[i] = premultiply(SRGB_TO_LINEAR[(pixel >> 16) & 0xFF], alpha);
+			g[i] = premultiply(SRGB_TO_LINEAR[(pixel >> 8) & 0xFF], alpha);
+			b[i] = premultiply(SRGB_TO_LINEAR[pixel & 0xFF], alpha);
+		}
+	}
+
+	@Override
+	public int[] pack(int[][] planes, int length){
+		unpremultiply(planes, length);
+		int[] a = planes[0];
+		int[] r = planes[1];
+		int[] g = planes[2];
+		int[] b = planes[3];
+		int[] argb = new int[length];
+		for (int i = 0; i < length; i++){
+			argb[i] = ((a[i] >> 8) << 24)
+					| ((LINEAR_TO_SRGB[r[i]] & 0xFF) << 16)
+					| ((LINEAR_TO_SRGB[g[i]] & 0xFF) << 8)
+					| (LINEAR_TO_SRGB[b[i]] & 0xFF);
+		}
+		return argb;
+	}
+
+	@Override
+	public void accumulateRow(int[] source, int[] target, int targetOffset,
+			int length, int weight){
+		for (int i = 0; i < length; i++){
+			target[targetOffset + i] += source[i] * weight;
+		}
+	}
+
+	@Override
+	public void normalize(int[] plane){
+		for (int i = 0; i < plane.length; i++){
+			plane[i] = clamp(plane[i] >> WEIGHT_BITS);
+		}
+	}
+
+	@Override
+	public void resampleRow(int[] source, int sourceOffset, 
+			int[] target, int targetOffset,
+			Contributions contributions){
+
+		int[] start = contributions.start;
+		int[] count = contributions.count;
+		int[] weights = contributions.weights;
+		int taps = contributions.taps;
+		int targetWidth = start.length;
+		for (int x = 0; x < targetWidth; x++){
+			int first = sourceOffset + start[x];
+			int n = count[x];
+			int weightIndex = x * taps;
+			int sum = WEIGHT_ROUND;
+			for (int k = 0; k < n; k++){
+				sum += source[first + k] * weights[weightIndex + k];
+			}
+			target[targetOffset + x] = clamp(sum >> WEIGHT_BITS);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package info.tvir.imageutils.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.tvir.imageutils.DecodeMemoryBudget;
+import info.tvir.imageutils.IImageResizer;
+import info.tvir.imageutils.ImageResizer;
+import info.tvir.imageutils.ImageTooLargeException;
+
+public class DecodeLimitsTest {
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private IImageResizer imageResizer;
+	private byte[] imageBytes;
+
+	@Before
+	public void init() throws IOException{
+		imageResizer = new ImageResizer();
+		imageBytes = toPng(new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@Test
+	public void testNoLimits() throws IOException{
+		BufferedImage result = imageResizer.getBufferedImage(imageBytes);
+		assertEquals(100, result.getWidth());
+		assertEquals(80, result.getHeight());
+	}
+
+	@Test(expected = ImageTooLargeException.class)
+	public void testMaxPixels() throws IOException{
+		imageResizer.setMaxPixels(5000);
+		imageResizer.getBufferedImage(imageBytes);
+	}
+
+	@Test(expected = ImageTooLargeException.class)
+	public void testMaxBytes() throws IOException{
+		imageResizer.setMaxBytes(imageBytes.length - 1);
+		imageResizer.getBufferedImage(imageBytes);
+	}
+
+	@Test(expected = ImageTooLargeException.class)
+	public void testMaxBytesInputStream() throws IOException{
+		// noise does not compress, so limit is exceeded while image data is read
+		BufferedImage noise = new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(27);
+		for (int y = 0; y < noise.getHeight(); y++){
+			for (int x = 0; x < noise.getWidth(); x++){
+				noise.setRGB(x, y, random.nextInt());
+			}
+		}
+		byte[] noiseBytes = toPng(noise);
+		
+		imageResizer.setMaxBytes(noiseBytes.length / 2);
+		imageResizer.getBufferedImage(new ByteArrayInputStream(noiseBytes));
+	}
+
+	@Test(expected = ImageTooLargeException.class)
+	public void testMaxMemory() throws IOException{
+		imageResizer.setMaxMemory(100 * 80);
+		imageResizer.getBufferedImage(imageBytes);
+	}
+
+	@Test
+	public void testSubsampleOversized() throws IOException{
+		imageResizer.setMaxPixels(5000);
+		imageResizer.setSubsampleOversized(true);
+		BufferedImage result = imageResizer.getBufferedImage(imageBytes);
+		log.info("subsampled to: " + result.getWidth() + "x" + result.getHeight());
+		assertEquals(50, result.getWidth());
+		assertEquals(40, result.getHeight());
+	}
+
+	@Test(timeout = 5000, expected = ImageTooLargeException.class)
+	public void testSubsampleBelowOnePixel() throws IOException{
+		// not even one pixel fits maxMemory
+		imageResizer.setMaxMemory(2);
+		imageResizer.setSubsampleOversized(true);
+		imageResizer.getBufferedImage(imageBytes);
+	}
+
+	@Test
+	public void testHugeHeaderFailsFast() throws IOException{
+		imageResizer.setMemoryBudget(new DecodeMemoryBudget(1L << 30));
+		byte[] bomb = pngHeader(65535, 65535);
+		try {
+			imageResizer.getBufferedImage(bomb);
+			fail("image of 65535x65535 should not be decoded");
+		} catch (ImageTooLargeException e) {
+			log.info("huge header rejected: " + e.getMessage());
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testSubsampleHugeSide() throws IOException{
+		imageResizer.setMaxPixels(1000000);
+		imageResizer.setSubsampleOversized(true);
+		byte[] bomb = pngHeader(Integer.MAX_VALUE, 1);
+		try {
+			imageResizer.getBufferedImage(bomb);
+			fail("header without image data should not be decoded");
+		} catch (IOException e) {
+			// limits are passed by subsampling, reader fails on missing image data
+			log.info("huge side rejected: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSubsampleForScaling() throws IOException{
+		// decoded 200x200 image fits budget, but not with buffers of linear scaling
+		imageResizer.setMemoryBudget(new DecodeMemoryBudget(100000));
+		imageResizer.setLinearScaling(true);
+		imageResizer.setSubsampleOversized(true);
+		byte[] bytes = toPng(new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB));
+
+		File file = File.createTempFile("decode-limits", ".jpg");
+		try {
+			imageResizer.saveImageByMargins(bytes, 150, 150, file);
+			BufferedImage result = ImageIO.read(file);
+			log.info("subsampled for scaling to: " + result.getWidth() + "x" + result.getHeight());
+			assertTrue(result.getWidth() < 150);
+			assertEquals(result.getWidth(), result.getHeight());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = ImageTooLargeException.class)
+	public void testMemoryBudget() throws IOException{
+		imageResizer.setMemoryBudget(new DecodeMemoryBudget(10000));
+		imageResizer.getBufferedImage(imageBytes);
+	}
+
+	@Test
+	public void testMemoryBudgetWaits() throws Exception{
+		// 100x80 RGB image needs 24000 bytes, budget has 10000 bytes free
+		final DecodeMemoryBudget budget = new DecodeMemoryBudget(40000);
+		imageResizer.setMemoryBudget(budget);
+		budget.acquire(30000);
+
+		final BufferedImage[] result = new BufferedImage[1];
+		Thread decode = new Thread(){
+			@Override
+			public void run(){
+				try {
+					result[0] = imageResizer.getBufferedImage(imageBytes);
+				} catch (IOException e) {
+					log.error("decode failed", e);
+				}
+			}
+		};
+		decode.start();
+		decode.join(300);
+		assertTrue("decode should wait for memory budget", decode.isAlive());
+		assertNull(result[0]);
+
+		budget.release(30000);
+		decode.join(5000);
+		assertFalse(decode.isAlive());
+		assertEquals(100, result[0].getWidth());
+	}
+
+	@Test(timeout = 5000)
+	public void testMemoryBudgetReleasedAfterSave() throws IOException{
+		DecodeMemoryBudget budget = new DecodeMemoryBudget(1 << 20);
+		imageResizer.setMemoryBudget(budget);
+		imageResizer.setLinearScaling(true);
+
+		File file = File.createTempFile("decode-limits", ".jpg");
+		try {
+			imageResizer.saveImageByMargins(imageBytes, 50, 50, file);
+			assertTrue(file.length() > 0);
+		} finally {
+			file.delete();
+		}
+
+		// blocks if save did not release its reservation
+		budget.acquire(budget.getMaxBytes());
+		budget.release(budget.getMaxBytes());
+	}
+
+	private byte[] toPng(BufferedImage image) throws IOException{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "PNG", output);
+		return output.toByteArray();
+	}
+
+	/**
+	 * PNG signature and IHDR chunk only, without image data
+	 */
+	private byte[] pngHeader(int width, int height) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+		DataOutputStream chunkOutput = new DataOutputStream(chunk);
+		chunkOutput.writeBytes("IHDR");
+		chunkOutput.writeInt(width);
+		chunkOutput.writeInt(height);
+		chunkOutput.writeByte(8); // bit depth
+		chunkOutput.writeByte(6); // RGBA
+		chunkOutput.writeByte(0);
+		chunkOutput.writeByte(0);
+		chunkOutput.writeByte(0);
+
+		byte[] chunkBytes = chunk.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(chunkBytes);
+		output.writeInt(chunkBytes.length - 4);
+		output.write(chunkBytes);
+		output.writeInt((int) crc.getValue());
+		return bytes.toByteArray();
+	}
+
+}
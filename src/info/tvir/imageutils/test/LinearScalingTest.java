@@ -0,0 +1,104 @@
+package info.tvir.imageutils.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.tvir.imageutils.IImageResizer;
+import info.tvir.imageutils.ImageResizer;
+
+public class LinearScalingTest {
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private IImageResizer imageResizer;
+
+	@Before
+	public void init(){
+		imageResizer = new ImageResizer();
+		imageResizer.setLinearScaling(true);
+	}
+
+	@Test
+	public void testTargetSize(){
+		BufferedImage original = solid(301, 157, 0x336699);
+		BufferedImage result = imageResizer.getScaledImage(original, 100, 52);
+		assertEquals(100, result.getWidth());
+		assertEquals(52, result.getHeight());
+	}
+
+	@Test
+	public void testSolidColorKept(){
+		BufferedImage original = solid(200, 100, 0x336699);
+		BufferedImage result = imageResizer.getScaledImage(original, 73, 37);
+		for (int y = 0; y < result.getHeight(); y++){
+			for (int x = 0; x < result.getWidth(); x++){
+				assertEquals(0x336699, result.getRGB(x, y) & 0xFFFFFF);
+			}
+		}
+	}
+
+	@Test
+	public void testCheckerboardNotDarkened(){
+		BufferedImage original = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 64; y++){
+			for (int x = 0; x < 64; x++){
+				original.setRGB(x, y, (x + y) % 2 == 0 ? 0xFFFFFF : 0x000000);
+			}
+		}
+
+		BufferedImage result = imageResizer.getScaledImage(original, 16, 16);
+		int gray = result.getRGB(8, 8) & 0xFF;
+		log.info("checkerboard scaled in linear light: " + gray);
+
+		// half of linear light is 188 in sRGB, scaling in sRGB gives 128
+		assertTrue(Math.abs(gray - 188) <= 1);
+	}
+
+	@Test
+	public void testUpscale(){
+		BufferedImage original = solid(10, 20, 0xFF8000);
+		BufferedImage result = imageResizer.getScaledImage(original, 25, 50);
+		assertEquals(0xFF8000, result.getRGB(0, 0) & 0xFFFFFF);
+		assertEquals(0xFF8000, result.getRGB(24, 49) & 0xFFFFFF);
+	}
+
+	@Test
+	public void testTransparentEdgeNotBleeding(){
+		imageResizer.setImageType(BufferedImage.TYPE_INT_ARGB);
+		BufferedImage original = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+		original.setRGB(0, 0, 0xFFFF0000);
+		original.setRGB(1, 0, 0x00000000);
+
+		BufferedImage result = imageResizer.getScaledImage(original, 1, 1);
+		int pixel = result.getRGB(0, 0);
+		log.info("opaque red and transparent black scaled to: " + Integer.toHexString(pixel));
+
+		// transparent black must not darken red
+		assertEquals(0xFF0000, pixel & 0xFFFFFF);
+		assertTrue(Math.abs((pixel >>> 24) - 0x80) <= 1);
+	}
+
+	@Test
+	public void testTransparentKept(){
+		imageResizer.setImageType(BufferedImage.TYPE_INT_ARGB);
+		BufferedImage original = new BufferedImage(40, 20, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage result = imageResizer.getScaledImage(original, 10, 5);
+		assertEquals(0, result.getRGB(5, 2));
+	}
+
+	private BufferedImage solid(int width, int height, int rgb){
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++){
+			for (int x = 0; x < width; x++){
+				image.setRGB(x, y, rgb);
+			}
+		}
+		return image;
+	}
+
+}
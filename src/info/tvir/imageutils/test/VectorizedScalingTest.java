@@ -0,0 +1,83 @@
+package info.tvir.imageutils.test;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.tvir.imageutils.IImageResizer;
+import info.tvir.imageutils.ImageResizer;
+
+public class VectorizedScalingTest {
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	private IImageResizer scalarResizer;
+	private IImageResizer vectorizedResizer;
+	private BufferedImage original;
+
+	@Before
+	public void init(){
+		scalarResizer = new ImageResizer();
+		scalarResizer.setLinearScaling(true);
+		scalarResizer.setImageType(BufferedImage.TYPE_INT_ARGB);
+		scalarResizer.setVectorizedScaling(false);
+
+		vectorizedResizer = new ImageResizer();
+		vectorizedResizer.setLinearScaling(true);
+		vectorizedResizer.setImageType(BufferedImage.TYPE_INT_ARGB);
+		vectorizedResizer.setVectorizedScaling(true);
+
+		// build.xml sets expectVector when tests run with jdk.incubator.vector,
+		//  otherwise tests are skipped, as they would compare scalar code with itself
+		if (Boolean.getBoolean("info.tvir.imageutils.expectVector")){
+			assertTrue("Vector API kernels are not loaded", 
+					vectorizedResizer.isVectorizedScalingAvailable());
+		}
+		Assume.assumeTrue(vectorizedResizer.isVectorizedScalingAvailable());
+
+		// odd size, so vector loops have scalar tails
+		original = new BufferedImage(317, 211, BufferedImage.TYPE_INT_ARGB);
+		Random random = new Random(26);
+		for (int y = 0; y < original.getHeight(); y++){
+			for (int x = 0; x < original.getWidth(); x++){
+				original.setRGB(x, y, random.nextInt());
+			}
+		}
+	}
+
+	@Test
+	public void testDownscale(){
+		assertSameResult(101, 67);
+	}
+
+	@Test
+	public void testStrongDownscale(){
+		assertSameResult(13, 9);
+	}
+
+	@Test
+	public void testUpscale(){
+		assertSameResult(641, 430);
+	}
+
+	@Test
+	public void testOnePixel(){
+		assertSameResult(1, 1);
+	}
+
+	private void assertSameResult(int targetWidth, int targetHeight){
+		BufferedImage expected = scalarResizer.getScaledImage(original, targetWidth, targetHeight);
+		BufferedImage result = vectorizedResizer.getScaledImage(original, targetWidth, targetHeight);
+		log.info("compare scalar and vectorized scaling to: " + targetWidth + "x" + targetHeight);
+		assertArrayEquals(
+				expected.getRGB(0, 0, targetWidth, targetHeight, null, 0, targetWidth),
+				result.getRGB(0, 0, targetWidth, targetHeight, null, 0, targetWidth));
+	}
+
+}